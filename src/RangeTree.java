@@ -1,14 +1,25 @@
+import java.util.ArrayList;
 import java.util.Collections;
+import java.util.Iterator;
 import java.util.LinkedList;
 import java.util.List;
+import java.util.TreeSet;
 
 /*
  *  A RangeTree is a binary search tree that
  *  (a) every node represent a range
  *  (b) nodes are ordered by the start of the range
  *  (c) every node is augmented by the maximum end of range in the sub-tree rooted by this node
+ *  (d) every node is augmented by the minimum start of range in the sub-tree rooted by this node
+ *  (e) if the tree has a Distance, every node is also augmented by an upper bound on the largest
+ *      uncovered gap between the ranges in the sub-tree rooted by this node
  *  Reference: https://en.wikipedia.org/wiki/Interval_tree#Augmented_tree
  *
+ *  Optionally, new ranges are first collected in a small sorted write buffer. A full buffer is written
+ *  out as a sorted run, and runs of equal size are merged like a binary counter (as in an LSM tree),
+ *  so adding a range never descends the tree. compact() rebuilds the tree from all pending ranges.
+ *  Queries look at the tree, the runs and the buffer.
+ *
  *  A better implementation would have been a self-balancing tree like red-black tree
  *  However due to time constraints I am going to skip this improvement
  *  Reference: https://en.wikipedia.org/wiki/Red–black_tree
@@ -16,6 +27,174 @@ import java.util.List;
 public class RangeTree<T extends Comparable<T>> {
 
     private Node<T> root;
+    // measures the length of uncovered gaps, only needed by firstFit() (@Nullable)
+    private final Distance<T> distance;
+    // ranges added but not yet written to a run, sorted by range start (@Nullable if not buffered)
+    private final TreeSet<Range<T>> buffer;
+    // number of ranges the buffer holds before it is written to a run
+    private final int bufferCapacity;
+    // runs.get(i) holds up to bufferCapacity * 2^i ranges not yet merged into the tree, or null (@Nullable if not buffered)
+    private final List<Run<T>> runs;
+
+    /*
+     * Measures the length of the uncovered gap (end, start) between two ranges
+     * The gap is open: end and start are covered points and are not part of it
+     * (e.g. for Integer, (end, start) -> start - end - 1 counts the free integers in between)
+     * Implementations must be monotonic: a gap that lies within another gap is never longer
+     */
+    public interface Distance<T extends Comparable<T>> {
+        long between(T end, T start);
+
+        /*
+         * Measures the half-open stretch [point, start) where point itself is uncovered
+         * The default works for distances that are a difference of positions,
+         * like start - end - 1 on integers or start - end on reals; override it otherwise
+         */
+        default long startingAt(T point, T start) {
+            return between(point, start) - between(point, point);
+        }
+    }
+
+    /*
+     * Where an uncovered stretch begins, as returned by nextUncovered() and firstFit()
+     * If start is inclusive, start itself is uncovered (it is the point that was asked about)
+     * Otherwise start is the last covered point of a run and the uncovered stretch begins right after it
+     */
+    public static class Gap<T extends Comparable<T>> {
+        private T start;
+        private boolean startInclusive;
+
+        public Gap(T start, boolean startInclusive) {
+            this.start = start;
+            this.startInclusive = startInclusive;
+        }
+
+        public T getStart() {
+            return start;
+        }
+
+        public boolean isStartInclusive() {
+            return startInclusive;
+        }
+
+        @Override
+        public String toString() {
+            return (startInclusive ? "[" : "(") + start + ", ...)";
+        }
+
+        @Override
+        public boolean equals(Object other) {
+            if (this == other) return true;
+            if (other == null || getClass() != other.getClass()) return false;
+
+            Gap<?> gap = (Gap<?>) other;
+            if (startInclusive != gap.startInclusive) return false;
+            return start.equals(gap.start);
+        }
+
+        @Override
+        public int hashCode() {
+            int result = start.hashCode();
+            result = 31 * result + (startInclusive ? 1 : 0);
+            return result;
+        }
+    }
+
+    /*
+     * A sorted list of ranges written out from the buffer, never modified once created
+     * Every position also keeps the maximum end of the ranges up to and including it, so a query
+     * scanning backwards can stop as soon as no earlier range reaches it
+     */
+    static class Run<T extends Comparable<T>> {
+        private final List<Range<T>> ranges;
+        private final List<T> maxEnds;
+
+        Run(List<Range<T>> ranges) {
+            this.ranges = ranges;
+            maxEnds = new ArrayList<>(ranges.size());
+            T max = null;
+            for (Range<T> range : ranges) {
+                if (max == null || range.getEnd().compareTo(max) > 0) max = range.getEnd();
+                maxEnds.add(max);
+            }
+        }
+
+        List<Range<T>> getRanges() {
+            return ranges;
+        }
+
+        List<Range<T>> overlapping(Range<T> query) {
+            LinkedList<Range<T>> overlapping = new LinkedList<>();
+            for (int i = countStartingBefore(ranges, query.getEnd(), true) - 1;
+                 i >= 0 && maxEnds.get(i).compareTo(query.getStart()) >= 0; i--) {
+                if (ranges.get(i).getEnd().compareTo(query.getStart()) >= 0) {
+                    // scanning backwards, so add to the front to keep the list sorted by start
+                    overlapping.addFirst(ranges.get(i));
+                }
+            }
+            return overlapping;
+        }
+
+        // the furthest end of the ranges that start at or before point, null if there are none
+        T reach(T point) {
+            int last = countStartingBefore(ranges, point, true) - 1;
+            return last >= 0 ? maxEnds.get(last) : null;
+        }
+
+        Range<T> floor(T point) {
+            int last = countStartingBefore(ranges, point, true) - 1;
+            return last >= 0 ? ranges.get(last) : null;
+        }
+
+        Range<T> ceiling(T point) {
+            int first = countStartingBefore(ranges, point, false);
+            return first < ranges.size() ? ranges.get(first) : null;
+        }
+    }
+
+    static <T extends Comparable<T>> int countStartingBefore(List<Range<T>> sortedRanges, T point, boolean inclusive) {
+        // binary search for the number of ranges that start before point (or at point, if inclusive)
+        int low = 0;
+        int high = sortedRanges.size();
+        while (low < high) {
+            int middle = (low + high) >>> 1;
+            int comparison = sortedRanges.get(middle).getStart().compareTo(point);
+            if (comparison < 0 || (inclusive && comparison == 0)) {
+                low = middle + 1;
+            } else {
+                high = middle;
+            }
+        }
+        return low;
+    }
+
+    public RangeTree() {
+        this(null);
+    }
+
+    public RangeTree(Distance<T> distance) {
+        this(distance, 0);
+    }
+
+    public RangeTree(int bufferCapacity) {
+        this(null, bufferCapacity);
+    }
+
+    /*
+     * Creates a tree that buffers up to bufferCapacity new ranges before writing them to a sorted run
+     * A capacity of zero disables buffering
+     * Capacities of 64 to 256 work best: larger ones do not ingest faster, and every query scans the buffer
+     * Throws IllegalArgumentException if bufferCapacity is negative
+     */
+    public RangeTree(Distance<T> distance, int bufferCapacity) {
+        if (bufferCapacity < 0) {
+            throw new IllegalArgumentException("Buffer capacity cannot be negative: " + bufferCapacity);
+        }
+        this.distance = distance;
+        this.bufferCapacity = bufferCapacity;
+        buffer = bufferCapacity > 0 ? new TreeSet<Range<T>>() : null;
+        runs = bufferCapacity > 0 ? new ArrayList<Run<T>>() : null;
+    }
 
     public static class Node<T extends Comparable<T>> {
         // root of the left sub-tree (@Nullable)
@@ -26,10 +205,15 @@ public class RangeTree<T extends Comparable<T>> {
         private Range<T> range;
         // the maximum range end in the sub-tree rooted by this node (@NotNull)
         private T max;
+        // the minimum range start in the sub-tree rooted by this node (@NotNull)
+        private T min;
+        // upper bound on the largest uncovered gap between ranges in the sub-tree rooted by this node
+        private long maxGap;
 
         public Node(Range<T> range) {
             this.range = range;
             max = range.getEnd();
+            min = range.getStart();
         }
 
         public Node<T> getLeft() {
@@ -59,6 +243,22 @@ public class RangeTree<T extends Comparable<T>> {
         public void setMax(T max) {
             this.max = max;
         }
+
+        public T getMin() {
+            return min;
+        }
+
+        public void setMin(T min) {
+            this.min = min;
+        }
+
+        public long getMaxGap() {
+            return maxGap;
+        }
+
+        public void setMaxGap(long maxGap) {
+            this.maxGap = maxGap;
+        }
     }
 
     public static class Range<T extends Comparable<T>> implements Comparable<Range<T>> {
@@ -138,11 +338,127 @@ public class RangeTree<T extends Comparable<T>> {
     /*
      * Adds range to the tree (does not add duplicate ranges)
      * Returns true if a new node with this range is added, false otherwise
+     * If the tree is buffered, returns true if the range is new to the buffer (duplicates of ranges
+     * in older runs or in the tree are silently dropped when they are merged)
      * Throws IllegalArgumentException if range is invalid
      */
     public boolean addRange(Range<T> range) {
         verifyIsValidRange(range);
 
+        if (buffer == null) {
+            return insert(range);
+        }
+
+        boolean added = buffer.add(range);
+        if (buffer.size() >= bufferCapacity) {
+            flush();
+        }
+        return added;
+    }
+
+    void flush() {
+        // the buffer becomes a run on level 0; while the level is taken, the two runs are merged and moved
+        // up one level, like carrying in a binary counter, so every range is merged O(log n) times and
+        // every merge reads and writes sorted lists in order
+        List<Range<T>> ranges = new ArrayList<>(buffer);
+        buffer.clear();
+        int level = 0;
+        while (level < runs.size() && runs.get(level) != null) {
+            ranges = mergeDistinct(runs.get(level).getRanges(), ranges);
+            runs.set(level, null);
+            level++;
+        }
+        if (level == runs.size()) {
+            runs.add(null);
+        }
+        runs.set(level, new Run<>(ranges));
+    }
+
+    List<Range<T>> mergeDistinct(List<Range<T>> first, List<Range<T>> second) {
+        // both lists are sorted by range, keep it that way and drop ranges that are in both
+        List<Range<T>> merged = new ArrayList<>(first.size() + second.size());
+        int i = 0;
+        int j = 0;
+        while (i < first.size() && j < second.size()) {
+            int comparison = first.get(i).compareTo(second.get(j));
+            if (comparison <= 0) {
+                merged.add(first.get(i++));
+                if (comparison == 0) j++;
+            } else {
+                merged.add(second.get(j++));
+            }
+        }
+        merged.addAll(first.subList(i, first.size()));
+        merged.addAll(second.subList(j, second.size()));
+        return merged;
+    }
+
+    /*
+     * Moves all buffered ranges and runs into the tree (does nothing if the tree is not buffered)
+     * The tree is rebuilt balanced from one sorted list, which takes O(n)
+     */
+    public void compact() {
+        if (buffer == null || (buffer.isEmpty() && runs.isEmpty())) return;
+
+        List<Range<T>> ranges = new ArrayList<>(buffer);
+        buffer.clear();
+        for (Run<T> run : runs) {
+            if (run != null) {
+                ranges = mergeDistinct(run.getRanges(), ranges);
+            }
+        }
+        runs.clear();
+        // in a buffered tree only compact() builds the tree, so its in-order ranges are sorted as well
+        List<Range<T>> tree = new ArrayList<>();
+        inOrder(root, tree);
+        ranges = mergeDistinct(tree, ranges);
+        root = buildBalanced(ranges, 0, ranges.size());
+    }
+
+    void inOrder(Node<T> node, List<Range<T>> ranges) {
+        if (node == null) return;
+
+        inOrder(node.getLeft(), ranges);
+        ranges.add(node.getRange());
+        inOrder(node.getRight(), ranges);
+    }
+
+    Node<T> buildBalanced(List<Range<T>> batch, int low, int high) {
+        if (low >= high) return null;
+
+        // keep ranges that start with the middle range on its right, like addRangeRecursive() does
+        int middle = (low + high) >>> 1;
+        T start = batch.get(middle).getStart();
+        while (middle > low && batch.get(middle - 1).getStart().compareTo(start) == 0) {
+            middle--;
+        }
+
+        Node<T> node = new Node<>(batch.get(middle));
+        node.setLeft(buildBalanced(batch, low, middle));
+        node.setRight(buildBalanced(batch, middle + 1, high));
+        updateAugmentation(node);
+        return node;
+    }
+
+    void updateAugmentation(Node<T> node) {
+        // recompute max and min from this node's range and the roots of both sub-trees
+        T max = node.getRange().getEnd();
+        T min = node.getRange().getStart();
+        Node<T> left = node.getLeft();
+        if (left != null) {
+            if (left.getMax().compareTo(max) > 0) max = left.getMax();
+            if (left.getMin().compareTo(min) < 0) min = left.getMin();
+        }
+        Node<T> right = node.getRight();
+        if (right != null && right.getMax().compareTo(max) > 0) {
+            max = right.getMax();
+        }
+        node.setMax(max);
+        node.setMin(min);
+        adjustMaxGap(node);
+    }
+
+    boolean insert(Range<T> range) {
         if (root == null) {
             root = new Node<>(range);
             return true;
@@ -164,9 +480,11 @@ public class RangeTree<T extends Comparable<T>> {
     }
 
     boolean addRangeRecursive(Node<T> node, Range<T> range) {
-        // adjust current node's max (if necessary)
+        // adjust current node's max and min (if necessary)
         adjustMax(node, range);
+        adjustMin(node, range);
 
+        boolean added;
         if (range.equals(node.getRange())) {
             // if range is currently in the tree, do not add it again
             return false;
@@ -174,18 +492,24 @@ public class RangeTree<T extends Comparable<T>> {
             // if range starts before current node's range then add it to left sub-tree
             if (node.getLeft() == null) {
                 node.setLeft(new Node<>(range));
-                return true;
+                added = true;
+            } else {
+                added = addRangeRecursive(node.getLeft(), range);
             }
-            return addRangeRecursive(node.getLeft(), range);
         } else {
             // if the range's start is the same or greater than current node's
             // then add it to the right sub-tree
             if (node.getRight() == null) {
                 node.setRight(new Node<>(range));
-                return true;
+                added = true;
+            } else {
+                added = addRangeRecursive(node.getRight(), range);
             }
-            return addRangeRecursive(node.getRight(), range);
         }
+
+        // the sub-tree has changed below this node, so its gap bound has to be recomputed
+        adjustMaxGap(node);
+        return added;
     }
 
     void adjustMax(Node<T> node, Range<T> range) {
@@ -195,6 +519,42 @@ public class RangeTree<T extends Comparable<T>> {
         }
     }
 
+    void adjustMin(Node<T> node, Range<T> range) {
+        // no need to adjust min if it is greater than or equal to current min
+        if (range.getStart().compareTo(node.getMin()) < 0) {
+            node.setMin(range.getStart());
+        }
+    }
+
+    void adjustMaxGap(Node<T> node) {
+        if (distance == null) return;
+
+        // walk the left sub-tree, this node and the right sub-tree in start order and take the largest of:
+        //  (a) the gap bounds of both sub-trees
+        //  (b) the gaps between the end of everything seen so far and the next start
+        // this is an upper bound (not exact) because a long range on the left may cover gaps on the right
+        long gap = 0;
+        T reach = null;
+        Node<T> left = node.getLeft();
+        if (left != null) {
+            gap = left.getMaxGap();
+            reach = left.getMax();
+        }
+        T start = node.getRange().getStart();
+        if (reach != null && start.compareTo(reach) > 0) {
+            gap = Math.max(gap, distance.between(reach, start));
+        }
+        reach = reach == null || node.getRange().getEnd().compareTo(reach) > 0 ? node.getRange().getEnd() : reach;
+        Node<T> right = node.getRight();
+        if (right != null) {
+            gap = Math.max(gap, right.getMaxGap());
+            if (right.getMin().compareTo(reach) > 0) {
+                gap = Math.max(gap, distance.between(reach, right.getMin()));
+            }
+        }
+        node.setMaxGap(gap);
+    }
+
     /*
      * Delete range from the tree (only removes if a node with the same range exists)
      * Returns true if a node with the same range is found and deleted, false otherwise
@@ -226,6 +586,17 @@ public class RangeTree<T extends Comparable<T>> {
 
         // get all ranges that overlap query sorted by their range start
         List<Range<T>> sortedRanges = queryRangeRecursive(root, query);
+        if (buffer != null) {
+            // ranges that are still in the runs or the buffer have to be considered as well
+            for (Run<T> run : runs) {
+                if (run != null) {
+                    sortedRanges = mergeSorted(sortedRanges, run.overlapping(query));
+                }
+            }
+            if (!buffer.isEmpty()) {
+                sortedRanges = mergeSorted(sortedRanges, queryBuffer(query));
+            }
+        }
         // merge overlapping ranges and see if any resulting range matches query
         return match(query, sortedRanges);
     }
@@ -237,15 +608,15 @@ public class RangeTree<T extends Comparable<T>> {
         }
 
         List<Range<T>> overlapping = new LinkedList<>();
-        if (node.getLeft() != null && node.getMax().compareTo(query.getStart()) < 0) {
-            // recurse left sub-tree
+        if (node.getLeft() != null && node.getLeft().getMax().compareTo(query.getStart()) >= 0) {
+            // recurse left sub-tree only if some range in it ends at or after query starts
             overlapping.addAll(queryRangeRecursive(node.getLeft(), query));
         }
         if (node.getRange().overlaps(query)) {
             // if range overlaps this node's range select it
             overlapping.add(node.getRange());
         }
-        if (node.getRight() != null && query.getEnd().compareTo(node.getRange().getStart()) > 0) {
+        if (node.getRight() != null && query.getEnd().compareTo(node.getRange().getStart()) >= 0) {
             // recurse right sub-tree only if there will be any ranges that overlap it
             overlapping.addAll(queryRangeRecursive(node.getRight(), query));
         }
@@ -253,6 +624,39 @@ public class RangeTree<T extends Comparable<T>> {
         return overlapping;
     }
 
+    List<Range<T>> queryBuffer(Range<T> query) {
+        // a buffered range that starts long before query may still reach into it, so the scan has to
+        // begin at the first buffered range; this is O(bufferCapacity)
+        List<Range<T>> overlapping = new LinkedList<>();
+        for (Range<T> range : buffer) {
+            // buffer is sorted by range start, so no range after this one can overlap query
+            if (range.getStart().compareTo(query.getEnd()) > 0) break;
+            if (range.overlaps(query)) {
+                overlapping.add(range);
+            }
+        }
+        return overlapping;
+    }
+
+    List<Range<T>> mergeSorted(List<Range<T>> first, List<Range<T>> second) {
+        // both lists are sorted by range start, keep it that way
+        List<Range<T>> merged = new LinkedList<>();
+        Iterator<Range<T>> firstIterator = first.iterator();
+        Iterator<Range<T>> secondIterator = second.iterator();
+        Range<T> a = firstIterator.hasNext() ? firstIterator.next() : null;
+        Range<T> b = secondIterator.hasNext() ? secondIterator.next() : null;
+        while (a != null || b != null) {
+            if (b == null || (a != null && a.getStart().compareTo(b.getStart()) <= 0)) {
+                merged.add(a);
+                a = firstIterator.hasNext() ? firstIterator.next() : null;
+            } else {
+                merged.add(b);
+                b = secondIterator.hasNext() ? secondIterator.next() : null;
+            }
+        }
+        return merged;
+    }
+
     boolean match(Range<T> query, List<Range<T>> ranges) {
         // we need access to the last element in the list
         Range<T> lastRange = null;
@@ -293,6 +697,248 @@ public class RangeTree<T extends Comparable<T>> {
         return false;
     }
 
+    /*
+     * Returns the range with the greatest start that is less than or equal to point, null if there is none
+     * Throws IllegalArgumentException if point is null
+     */
+    public Range<T> floorRange(T point) {
+        verifyIsValidPoint(point);
+
+        Range<T> floor = null;
+        Node<T> node = root;
+        while (node != null) {
+            if (node.getRange().getStart().compareTo(point) <= 0) {
+                // candidate, but a range further right may start closer to point
+                floor = node.getRange();
+                node = node.getRight();
+            } else {
+                node = node.getLeft();
+            }
+        }
+
+        if (buffer != null) {
+            for (Run<T> run : runs) {
+                if (run != null) {
+                    floor = laterStart(floor, run.floor(point));
+                }
+            }
+            // (point, point) is ordered before any other range that starts at point
+            Range<T> probe = new Range<>(point, point);
+            Range<T> buffered = buffer.ceiling(probe);
+            if (buffered == null || buffered.getStart().compareTo(point) != 0) {
+                buffered = buffer.floor(probe);
+            }
+            floor = laterStart(floor, buffered);
+        }
+        return floor;
+    }
+
+    /*
+     * Returns the range with the smallest start that is greater than or equal to point, null if there is none
+     * Throws IllegalArgumentException if point is null
+     */
+    public Range<T> ceilingRange(T point) {
+        verifyIsValidPoint(point);
+
+        Range<T> ceiling = null;
+        Node<T> node = root;
+        while (node != null) {
+            if (node.getRange().getStart().compareTo(point) >= 0) {
+                // candidate, but a range further left may start closer to point
+                ceiling = node.getRange();
+                node = node.getLeft();
+            } else {
+                node = node.getRight();
+            }
+        }
+
+        if (buffer != null) {
+            for (Run<T> run : runs) {
+                if (run != null) {
+                    ceiling = earlierStart(ceiling, run.ceiling(point));
+                }
+            }
+            ceiling = earlierStart(ceiling, buffer.ceiling(new Range<>(point, point)));
+        }
+        return ceiling;
+    }
+
+    Range<T> laterStart(Range<T> first, Range<T> second) {
+        if (first == null) return second;
+        if (second == null) return first;
+        return second.getStart().compareTo(first.getStart()) > 0 ? second : first;
+    }
+
+    Range<T> earlierStart(Range<T> first, Range<T> second) {
+        if (first == null) return second;
+        if (second == null) return first;
+        return second.getStart().compareTo(first.getStart()) < 0 ? second : first;
+    }
+
+    /*
+     * Returns where the first uncovered stretch at or after point begins (see Gap)
+     * Throws IllegalArgumentException if point is null
+     */
+    public Gap<T> nextUncovered(T point) {
+        verifyIsValidPoint(point);
+
+        if (!isCovered(point)) return new Gap<>(point, true);
+        return new Gap<>(extendReach(point), false);
+    }
+
+    boolean isCovered(T point) {
+        if (isCoveredInTree(point)) return true;
+        if (buffer == null) return false;
+
+        for (Run<T> run : runs) {
+            T reach = run != null ? run.reach(point) : null;
+            if (reach != null && reach.compareTo(point) >= 0) return true;
+        }
+        for (Range<T> range : buffer) {
+            if (range.getStart().compareTo(point) > 0) break;
+            if (range.getEnd().compareTo(point) >= 0) return true;
+        }
+        return false;
+    }
+
+    T extendReach(T reach) {
+        T extended = extendReach(root, reach);
+        if (buffer == null) return extended;
+
+        // a covered run can chain ranges from the tree, the runs and the buffer,
+        // so keep extending through all of them until none of them reaches further
+        T previous;
+        do {
+            previous = extended;
+            for (Run<T> run : runs) {
+                T runReach = run != null ? run.reach(extended) : null;
+                if (runReach != null && runReach.compareTo(extended) > 0) extended = runReach;
+            }
+            for (Range<T> range : buffer) {
+                if (range.getStart().compareTo(extended) > 0) break;
+                if (range.getEnd().compareTo(extended) > 0) extended = range.getEnd();
+            }
+            extended = extendReach(root, extended);
+        } while (extended.compareTo(previous) > 0);
+        return extended;
+    }
+
+    boolean isCoveredInTree(T point) {
+        Node<T> node = root;
+        while (node != null && !node.getRange().contains(new Range<>(point, point))) {
+            // if any range on the left ends at or after point, then either one of them contains point or
+            // they all start after it, and so does everything on the right
+            if (node.getLeft() != null && node.getLeft().getMax().compareTo(point) >= 0) {
+                node = node.getLeft();
+            } else {
+                node = node.getRight();
+            }
+        }
+        return node != null;
+    }
+
+    T extendReach(Node<T> node, T reach) {
+        if (node == null || node.getMax().compareTo(reach) <= 0) {
+            // nothing in this sub-tree ends after reach, so it cannot extend the covered run
+            return reach;
+        }
+
+        // visit ranges in start order, absorbing every range that starts inside the covered run
+        reach = extendReach(node.getLeft(), reach);
+        if (node.getRange().getStart().compareTo(reach) > 0) {
+            // this range and everything in the right sub-tree start after the covered run
+            return reach;
+        }
+        if (node.getRange().getEnd().compareTo(reach) > 0) {
+            reach = node.getRange().getEnd();
+        }
+        return extendReach(node.getRight(), reach);
+    }
+
+    /*
+     * Returns where the first uncovered stretch at or after from, that is at least length long, begins (see Gap)
+     * The space after the last range is unbounded, so there is always an answer
+     * If the tree is buffered, pending ranges are merged into the tree first (see compact()),
+     * because only the tree keeps the gap bounds the search relies on
+     * Throws IllegalArgumentException if from is null or length is negative
+     * Throws IllegalStateException if the tree was created without a Distance
+     */
+    public Gap<T> firstFit(T from, long length) {
+        verifyIsValidPoint(from);
+        if (length < 0) {
+            throw new IllegalArgumentException("Length cannot be negative: " + length);
+        }
+        if (distance == null) {
+            throw new IllegalStateException("A Distance is required to measure gaps.");
+        }
+        compact();
+
+        Cursor<T> reach = new Cursor<>(from);
+        if (!isCovered(from)) {
+            // from itself is free, so the stretch up to the next range is measured including it
+            Range<T> next = ceilingRange(from);
+            if (next == null || distance.startingAt(from, next.getStart()) >= length) {
+                return new Gap<>(from, true);
+            }
+            // too short, so carry on after the covered run that the next range starts
+            reach.setEnd(extendReach(root, next.getStart()));
+        }
+
+        T fit = firstFitRecursive(root, reach, length);
+        // if no gap between ranges is long enough, the space after the covered run is
+        return new Gap<>(fit != null ? fit : reach.getEnd(), false);
+    }
+
+    // the end of the covered run found so far while walking the tree in start order
+    static class Cursor<T> {
+        private T end;
+
+        Cursor(T end) {
+            this.end = end;
+        }
+
+        T getEnd() {
+            return end;
+        }
+
+        void setEnd(T end) {
+            this.end = end;
+        }
+    }
+
+    T firstFitRecursive(Node<T> node, Cursor<T> reach, long length) {
+        if (node == null || node.getMax().compareTo(reach.getEnd()) <= 0) {
+            // nothing in this sub-tree ends after reach, so it cannot contain a gap after reach
+            return null;
+        }
+
+        // adding ranges can only shrink gaps, so if neither the gap before this sub-tree nor
+        // the largest gap inside it is long enough then skip the whole sub-tree
+        long before = node.getMin().compareTo(reach.getEnd()) > 0 ? distance.between(reach.getEnd(), node.getMin()) : 0;
+        if (before < length && node.getMaxGap() < length) {
+            reach.setEnd(node.getMax());
+            return null;
+        }
+
+        T fit = firstFitRecursive(node.getLeft(), reach, length);
+        if (fit != null) return fit;
+
+        T start = node.getRange().getStart();
+        if (start.compareTo(reach.getEnd()) > 0 && distance.between(reach.getEnd(), start) >= length) {
+            return reach.getEnd();
+        }
+        if (node.getRange().getEnd().compareTo(reach.getEnd()) > 0) {
+            reach.setEnd(node.getRange().getEnd());
+        }
+        return firstFitRecursive(node.getRight(), reach, length);
+    }
+
+    void verifyIsValidPoint(T point) {
+        if (point == null) {
+            throw new IllegalArgumentException("Point cannot be null.");
+        }
+    }
+
     @Override
     public String toString() {
         return inOrderToString(root);
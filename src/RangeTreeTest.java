@@ -339,6 +339,287 @@ public class RangeTreeTest {
         assertEquals("[(1, 7), 7][(5, 10), 12][(9, 12), 12]", tree.toString());
     }
 
+    @Test
+    public void rangeTree_addRange_updatesMin() {
+        RangeTree<Integer> tree = new RangeTree<>();
+
+        assertTrue(tree.addRange(new RangeTree.Range<>(5, 10)));
+        assertTrue(tree.addRange(new RangeTree.Range<>(7, 15)));
+        assertEquals(Integer.valueOf(5), tree.getRoot().getMin());
+
+        assertTrue(tree.addRange(new RangeTree.Range<>(2, 4)));
+        assertEquals(Integer.valueOf(2), tree.getRoot().getMin());
+    }
+
+    @Test
+    public void rangeTree_addRange_updatesMaxGap() {
+        RangeTree<Integer> tree = new RangeTree<>((end, start) -> start - end - 1);
+
+        assertTrue(tree.addRange(new RangeTree.Range<>(10, 20)));
+        assertEquals(0, tree.getRoot().getMaxGap());
+
+        assertTrue(tree.addRange(new RangeTree.Range<>(25, 30)));
+        assertEquals(4, tree.getRoot().getMaxGap());
+
+        assertTrue(tree.addRange(new RangeTree.Range<>(0, 2)));
+        assertEquals(7, tree.getRoot().getMaxGap());
+    }
+
+    @Test
+    public void rangeTree_floorRange() {
+        RangeTree<Integer> tree = new RangeTree<>();
+        assertNull(tree.floorRange(5));
+
+        tree.addRange(new RangeTree.Range<>(10, 20));
+        tree.addRange(new RangeTree.Range<>(5, 8));
+        tree.addRange(new RangeTree.Range<>(15, 30));
+
+        assertNull(tree.floorRange(4));
+        assertEquals(new RangeTree.Range<>(5, 8), tree.floorRange(5));
+        assertEquals(new RangeTree.Range<>(5, 8), tree.floorRange(9));
+        assertEquals(new RangeTree.Range<>(10, 20), tree.floorRange(14));
+        assertEquals(new RangeTree.Range<>(15, 30), tree.floorRange(100));
+    }
+
+    @Test
+    public void rangeTree_ceilingRange() {
+        RangeTree<Integer> tree = new RangeTree<>();
+        assertNull(tree.ceilingRange(5));
+
+        tree.addRange(new RangeTree.Range<>(10, 20));
+        tree.addRange(new RangeTree.Range<>(5, 8));
+        tree.addRange(new RangeTree.Range<>(15, 30));
+
+        assertEquals(new RangeTree.Range<>(5, 8), tree.ceilingRange(1));
+        assertEquals(new RangeTree.Range<>(10, 20), tree.ceilingRange(6));
+        assertEquals(new RangeTree.Range<>(10, 20), tree.ceilingRange(10));
+        assertEquals(new RangeTree.Range<>(15, 30), tree.ceilingRange(11));
+        assertNull(tree.ceilingRange(16));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void rangeTree_floorRange_nullPoint() {
+        RangeTree<Integer> tree = new RangeTree<>();
+        tree.floorRange(null);
+    }
+
+    @Test
+    public void rangeTree_nextUncovered() {
+        RangeTree<Integer> tree = new RangeTree<>();
+        assertEquals(new RangeTree.Gap<>(5, true), tree.nextUncovered(5));
+
+        tree.addRange(new RangeTree.Range<>(10, 20));
+        tree.addRange(new RangeTree.Range<>(5, 12));
+        tree.addRange(new RangeTree.Range<>(18, 25));
+        tree.addRange(new RangeTree.Range<>(30, 40));
+
+        assertEquals(new RangeTree.Gap<>(1, true), tree.nextUncovered(1));
+        assertEquals(new RangeTree.Gap<>(25, false), tree.nextUncovered(5));
+        assertEquals(new RangeTree.Gap<>(25, false), tree.nextUncovered(15));
+        assertEquals(new RangeTree.Gap<>(25, false), tree.nextUncovered(25));
+        assertEquals(new RangeTree.Gap<>(27, true), tree.nextUncovered(27));
+        assertEquals(new RangeTree.Gap<>(40, false), tree.nextUncovered(30));
+        assertEquals(new RangeTree.Gap<>(40, false), tree.nextUncovered(40));
+        assertEquals(new RangeTree.Gap<>(50, true), tree.nextUncovered(50));
+    }
+
+    @Test
+    public void rangeTree_gap() {
+        final RangeTree.Gap<Integer> gap = new RangeTree.Gap<>(5, true);
+
+        assertEquals(Integer.valueOf(5), gap.getStart());
+        assertTrue(gap.isStartInclusive());
+        assertEquals("[5, ...)", gap.toString());
+        assertEquals("(5, ...)", new RangeTree.Gap<>(5, false).toString());
+        assertEquals(gap, new RangeTree.Gap<>(5, true));
+        assertEquals(gap.hashCode(), new RangeTree.Gap<>(5, true).hashCode());
+        assertFalse(gap.equals(new RangeTree.Gap<>(5, false)));
+    }
+
+    @Test
+    public void rangeTree_firstFit() {
+        RangeTree<Integer> tree = new RangeTree<>((end, start) -> start - end - 1);
+        assertEquals(new RangeTree.Gap<>(0, true), tree.firstFit(0, 100));
+
+        tree.addRange(new RangeTree.Range<>(10, 20));
+        tree.addRange(new RangeTree.Range<>(22, 30));
+        tree.addRange(new RangeTree.Range<>(0, 5));
+        tree.addRange(new RangeTree.Range<>(40, 50));
+        tree.addRange(new RangeTree.Range<>(25, 35));
+
+        // free integers: 6-9, 21, 36-39 and everything after 50
+        assertEquals(new RangeTree.Gap<>(5, false), tree.firstFit(0, 4));
+        assertEquals(new RangeTree.Gap<>(20, false), tree.firstFit(12, 1));
+        assertEquals(new RangeTree.Gap<>(35, false), tree.firstFit(12, 2));
+        assertEquals(new RangeTree.Gap<>(50, false), tree.firstFit(0, 5));
+        assertEquals(new RangeTree.Gap<>(5, false), tree.firstFit(5, 4));
+        assertEquals(new RangeTree.Gap<>(6, true), tree.firstFit(6, 4));
+        assertEquals(new RangeTree.Gap<>(7, true), tree.firstFit(7, 3));
+        assertEquals(new RangeTree.Gap<>(35, false), tree.firstFit(7, 4));
+        assertEquals(new RangeTree.Gap<>(21, true), tree.firstFit(21, 1));
+        assertEquals(new RangeTree.Gap<>(60, true), tree.firstFit(60, 100));
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void rangeTree_firstFit_noDistance() {
+        RangeTree<Integer> tree = new RangeTree<>();
+        tree.firstFit(0, 10);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void rangeTree_firstFit_negativeLength() {
+        RangeTree<Integer> tree = new RangeTree<>((end, start) -> start - end - 1);
+        tree.firstFit(0, -1);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void rangeTree_buffered_negativeCapacity() {
+        new RangeTree<Integer>(-1);
+    }
+
+    @Test
+    public void rangeTree_buffered_addRange() {
+        RangeTree<Integer> tree = new RangeTree<>(3);
+
+        assertTrue(tree.addRange(new RangeTree.Range<>(5, 10)));
+        assertFalse(tree.addRange(new RangeTree.Range<>(5, 10)));
+        assertTrue(tree.addRange(new RangeTree.Range<>(1, 4)));
+        assertNull(tree.getRoot());
+
+        // the third range fills the buffer, which is written to a run rather than the tree
+        assertTrue(tree.addRange(new RangeTree.Range<>(12, 20)));
+        assertNull(tree.getRoot());
+        assertTrue(tree.queryRange(new RangeTree.Range<>(13, 19)));
+
+        tree.compact();
+        assertEquals(new RangeTree.Range<>(5, 10), tree.getRoot().getRange());
+        assertEquals(new RangeTree.Range<>(1, 4), tree.getRoot().getLeft().getRange());
+        assertEquals(new RangeTree.Range<>(12, 20), tree.getRoot().getRight().getRange());
+        assertEquals(Integer.valueOf(20), tree.getRoot().getMax());
+    }
+
+    @Test
+    public void rangeTree_buffered_compact() {
+        RangeTree<Integer> tree = new RangeTree<>(100);
+
+        tree.addRange(new RangeTree.Range<>(5, 10));
+        tree.addRange(new RangeTree.Range<>(1, 7));
+        assertEquals("", tree.toString());
+
+        tree.compact();
+        assertEquals("[(1, 7), 7][(5, 10), 10]", tree.toString());
+
+        // ranges already in the tree are not added twice
+        tree.addRange(new RangeTree.Range<>(1, 7));
+        tree.compact();
+        assertEquals("[(1, 7), 7][(5, 10), 10]", tree.toString());
+    }
+
+    @Test
+    public void rangeTree_buffered_compactRebuildsTree() {
+        RangeTree<Integer> tree = new RangeTree<>(100);
+
+        tree.addRange(new RangeTree.Range<>(10, 20));
+        tree.compact();
+
+        tree.addRange(new RangeTree.Range<>(25, 26));
+        tree.addRange(new RangeTree.Range<>(5, 8));
+        tree.addRange(new RangeTree.Range<>(15, 30));
+        tree.addRange(new RangeTree.Range<>(10, 20));
+        tree.compact();
+
+        // the tree is rebuilt balanced from the sorted ranges, without the duplicate (10, 20)
+        assertEquals(new RangeTree.Range<>(15, 30), tree.getRoot().getRange());
+        assertEquals(new RangeTree.Range<>(10, 20), tree.getRoot().getLeft().getRange());
+        assertEquals(new RangeTree.Range<>(5, 8), tree.getRoot().getLeft().getLeft().getRange());
+        assertEquals(new RangeTree.Range<>(25, 26), tree.getRoot().getRight().getRange());
+        assertEquals(Integer.valueOf(30), tree.getRoot().getMax());
+        assertEquals(Integer.valueOf(5), tree.getRoot().getMin());
+        assertEquals(Integer.valueOf(20), tree.getRoot().getLeft().getMax());
+        assertEquals(Integer.valueOf(5), tree.getRoot().getLeft().getMin());
+    }
+
+    @Test
+    public void rangeTree_buffered_floorAndCeilingRange() {
+        RangeTree<Integer> tree = new RangeTree<>(100);
+
+        tree.addRange(new RangeTree.Range<>(10, 20));
+        tree.compact();
+        tree.addRange(new RangeTree.Range<>(5, 8));
+        tree.addRange(new RangeTree.Range<>(15, 30));
+        tree.addRange(new RangeTree.Range<>(15, 16));
+
+        assertEquals(new RangeTree.Range<>(5, 8), tree.floorRange(9));
+        assertEquals(new RangeTree.Range<>(10, 20), tree.floorRange(14));
+        assertEquals(Integer.valueOf(15), tree.floorRange(15).getStart());
+        assertEquals(new RangeTree.Range<>(5, 8), tree.ceilingRange(1));
+        assertEquals(new RangeTree.Range<>(10, 20), tree.ceilingRange(6));
+        assertEquals(new RangeTree.Range<>(15, 16), tree.ceilingRange(11));
+        assertNull(tree.ceilingRange(16));
+
+        // answered from the tree and the buffer without compacting
+        assertNull(tree.getRoot().getLeft());
+        assertNull(tree.getRoot().getRight());
+    }
+
+    @Test
+    public void rangeTree_buffered_queryRange() {
+        RangeTree<Integer> tree = new RangeTree<>(100);
+
+        tree.addRange(new RangeTree.Range<>(5, 10));
+        assertTrue(tree.queryRange(new RangeTree.Range<>(6, 9)));
+        tree.compact();
+
+        // (8, 15) is only in the buffer, (5, 10) is only in the tree
+        tree.addRange(new RangeTree.Range<>(8, 15));
+        assertNull(tree.getRoot().getRight());
+        assertTrue(tree.queryRange(new RangeTree.Range<>(5, 15)));
+        assertTrue(tree.queryRange(new RangeTree.Range<>(9, 14)));
+        assertFalse(tree.queryRange(new RangeTree.Range<>(5, 16)));
+        assertFalse(tree.queryRange(new RangeTree.Range<>(16, 20)));
+    }
+
+    @Test
+    public void rangeTree_buffered_nextUncovered() {
+        RangeTree<Integer> tree = new RangeTree<>(100);
+
+        tree.addRange(new RangeTree.Range<>(5, 10));
+        tree.addRange(new RangeTree.Range<>(8, 15));
+
+        assertEquals(new RangeTree.Gap<>(15, false), tree.nextUncovered(5));
+        assertNull(tree.getRoot());
+    }
+
+    @Test
+    public void rangeTree_buffered_runs() {
+        RangeTree<Integer> tree = new RangeTree<>(2);
+
+        // the first four ranges end up in one merged run, (10, 12) and the duplicate (1, 4) in another
+        // and (30, 35) in the buffer
+        tree.addRange(new RangeTree.Range<>(4, 7));
+        tree.addRange(new RangeTree.Range<>(1, 4));
+        tree.addRange(new RangeTree.Range<>(20, 25));
+        tree.addRange(new RangeTree.Range<>(7, 10));
+        tree.addRange(new RangeTree.Range<>(10, 12));
+        tree.addRange(new RangeTree.Range<>(1, 4));
+        tree.addRange(new RangeTree.Range<>(30, 35));
+        assertNull(tree.getRoot());
+
+        assertTrue(tree.queryRange(new RangeTree.Range<>(1, 12)));
+        assertFalse(tree.queryRange(new RangeTree.Range<>(1, 13)));
+        assertTrue(tree.queryRange(new RangeTree.Range<>(21, 24)));
+        assertEquals(new RangeTree.Range<>(7, 10), tree.floorRange(8));
+        assertEquals(new RangeTree.Range<>(20, 25), tree.ceilingRange(11));
+        assertEquals(new RangeTree.Range<>(30, 35), tree.ceilingRange(26));
+        assertTrue(tree.queryRange(new RangeTree.Range<>(31, 35)));
+        assertEquals(new RangeTree.Gap<>(12, false), tree.nextUncovered(2));
+        assertEquals(new RangeTree.Gap<>(13, true), tree.nextUncovered(13));
+        assertNull(tree.getRoot());
+
+        tree.compact();
+        assertEquals("[(1, 4), 4][(4, 7), 10][(7, 10), 10][(10, 12), 35][(20, 25), 25][(30, 35), 35]", tree.toString());
+    }
+
     @Test(timeout = 10000)
     public void rangeTree_scalability() {
         final int sampleSize = 100000;